@@ -0,0 +1,36 @@
+/**
+ * Immutable snapshot of who holds the coordinator lease and until when. Answers leader
+ * lookups locally. Followers take the expiry from the coordinator's clock, which every
+ * process on the host shares, so their view lapses together with the coordinator's lease.
+ */
+public class CoordinatorLease {
+    public static final CoordinatorLease NONE = new CoordinatorLease(-1, 0);
+
+    private final int coordinatorId;
+    private final long expiresAt;
+
+    public CoordinatorLease(int coordinatorId, long expiresAt) {
+        this.coordinatorId = coordinatorId;
+        this.expiresAt = expiresAt;
+    }
+
+    public int getCoordinatorId() {
+        return coordinatorId;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public long getRemainingInMs() {
+        return Math.max(0, expiresAt - System.currentTimeMillis());
+    }
+
+    public boolean isValid() {
+        return coordinatorId != -1 && getRemainingInMs() > 0;
+    }
+
+    public String toString() {
+        return isValid() ? "Coordinator " + coordinatorId + " (" + getRemainingInMs() + " ms left)" : "No coordinator lease";
+    }
+}
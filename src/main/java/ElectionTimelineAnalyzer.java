@@ -0,0 +1,354 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds a timeline per election from the central log stream, keyed by the trace id every
+ * election message carries. Elections are reported and dropped as soon as they go quiet,
+ * so memory stays bounded by the number of elections in flight rather than the log length.
+ */
+public class ElectionTimelineAnalyzer {
+    protected static final int QUIET_PERIOD_IN_MS = ProcessApp.ELECTION_TIMEOUT_IN_MS;
+    protected static final int ABANDON_AFTER_IN_MS = 10 * ProcessApp.COORDINATOR_TIMEOUT_IN_MS;
+    protected static final int MAX_RECENT_TIMELINES = 20;
+    protected static final int MAX_FINISHED_TRACES = 1024;
+
+    private static final Pattern STARTED = Pattern.compile("^Process (\\d+) started election (\\S+) at clock (\\d+) \\((.*)\\)$");
+    private static final Pattern JOINED = Pattern.compile("^Process (\\d+) joined election (\\S+) \\(was (\\S+)\\)$");
+    private static final Pattern BECAME_COORDINATOR = Pattern.compile("^Process (\\d+) became coordinator after \\d+ ms in election (\\S+)$");
+    private static final Pattern RECEIVED = Pattern.compile("^Process (\\d+) received: .*? \\| From: (\\d+) \\| (\\w+)(?: \\| .*)? \\| Trace: (\\S+)$");
+
+    private Consumer<String> listener;
+
+    private Map<String, Election> elections = new HashMap<>();
+    private Map<String, String> aliases = new HashMap<>();
+    private Set<String> finishedTraces = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_FINISHED_TRACES;
+        }
+    });
+    private Deque<String> recentTimelines = new ArrayDeque<>();
+
+    private long completedElections;
+    private long totalElectionTime;
+    private long maxElectionTime;
+
+    public ElectionTimelineAnalyzer(Consumer<String> listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void accept(String line, long time) {
+        if (line != null) {
+            process(line.trim(), time);
+        }
+        expire(time);
+    }
+
+    private void process(String line, long time) {
+        Matcher matcher = RECEIVED.matcher(line);
+        if (matcher.matches()) {
+            MessageType type;
+            try {
+                type = MessageType.valueOf(matcher.group(3));
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            // Heartbeats and membership messages carry the trace of the coordinator's term, not an election
+            if (type != MessageType.ELECTION && type != MessageType.OK && type != MessageType.COORDINATOR) {
+                return;
+            }
+            Election election = find(matcher.group(4), time);
+            if (election == null) {
+                return;
+            }
+            int receiverId = Integer.parseInt(matcher.group(1));
+            switch (type) {
+                case ELECTION:
+                    election.electionMessages++;
+                    election.participants.add(receiverId);
+                    election.firstElectionAt = election.firstElectionAt == -1 ? time : Math.min(election.firstElectionAt, time);
+                    break;
+                case OK:
+                    election.okMessages++;
+                    election.lastOkAt = Math.max(election.lastOkAt, time);
+                    break;
+                case COORDINATOR:
+                    election.coordinatorMessages++;
+                    election.lastCoordinatorAt = Math.max(election.lastCoordinatorAt, time);
+                    break;
+            }
+            election.lastEventAt = time;
+            return;
+        }
+
+        matcher = STARTED.matcher(line);
+        if (matcher.matches()) {
+            Election election = find(matcher.group(2), time);
+            if (election == null) {
+                return;
+            }
+            int processId = Integer.parseInt(matcher.group(1));
+            long clock = Long.parseLong(matcher.group(3));
+            if (election.detectorId == -1 || detectedEarlier(time, clock, processId, election)) {
+                election.detectorId = processId;
+                election.detectorAt = time;
+                election.detectorClock = clock;
+                election.reason = matcher.group(4);
+            }
+            election.detectedAt = Math.min(election.detectedAt, time);
+            election.participants.add(processId);
+            election.lastEventAt = time;
+            return;
+        }
+
+        matcher = JOINED.matcher(line);
+        if (matcher.matches()) {
+            merge(matcher.group(3), matcher.group(2), time);
+            return;
+        }
+
+        matcher = BECAME_COORDINATOR.matcher(line);
+        if (matcher.matches()) {
+            Election election = find(matcher.group(2), time);
+            if (election == null) {
+                return;
+            }
+            election.winnerId = Integer.parseInt(matcher.group(1));
+            election.declarations++;
+            election.declaredAt = Math.max(election.declaredAt, time);
+            election.lastEventAt = time;
+        }
+    }
+
+    /**
+     * Concurrent detections are not ordered by Lamport clocks, so the first detector is the one
+     * whose log line arrived first; processes share the host clock. The clock and process id only
+     * break ties so the choice stays deterministic.
+     */
+    private static boolean detectedEarlier(long time, long clock, int processId, Election election) {
+        if (time != election.detectorAt) {
+            return time < election.detectorAt;
+        }
+        if (clock != election.detectorClock) {
+            return clock < election.detectorClock;
+        }
+        return processId < election.detectorId;
+    }
+
+    private String resolve(String traceId) {
+        String resolved = traceId;
+        while (aliases.containsKey(resolved)) {
+            resolved = aliases.get(resolved);
+        }
+        return resolved;
+    }
+
+    // Returns null for events that arrive after their election was already reported
+    private Election find(String traceId, long time) {
+        String resolved = resolve(traceId);
+        if (finishedTraces.contains(resolved)) {
+            return null;
+        }
+        return elections.computeIfAbsent(resolved, key -> new Election(key, time));
+    }
+
+    private void merge(String fromTraceId, String intoTraceId, long time) {
+        String from = resolve(fromTraceId);
+        Election into = find(intoTraceId, time);
+        // Followers also "join" when they move on from the previous, already reported election
+        if (into == null || from.equals(into.traceId) || finishedTraces.contains(from)) {
+            return;
+        }
+        aliases.put(from, into.traceId);
+        into.aliases.add(from);
+
+        Election merged = elections.remove(from);
+        if (merged == null) {
+            return;
+        }
+        into.aliases.addAll(merged.aliases);
+        if (merged.detectorId != -1 && (into.detectorId == -1
+                || detectedEarlier(merged.detectorAt, merged.detectorClock, merged.detectorId, into))) {
+            if (into.detectorId != -1) {
+                into.concurrentDetectors.add(into.detectorId);
+            }
+            into.detectorId = merged.detectorId;
+            into.detectorAt = merged.detectorAt;
+            into.detectorClock = merged.detectorClock;
+            into.reason = merged.reason;
+        } else if (merged.detectorId != -1) {
+            into.concurrentDetectors.add(merged.detectorId);
+        }
+        into.concurrentDetectors.addAll(merged.concurrentDetectors);
+        into.concurrentDetectors.remove(into.detectorId);
+        into.participants.addAll(merged.participants);
+        into.detectedAt = Math.min(into.detectedAt, merged.detectedAt);
+        into.firstElectionAt = into.firstElectionAt == -1 ? merged.firstElectionAt
+                : merged.firstElectionAt == -1 ? into.firstElectionAt : Math.min(into.firstElectionAt, merged.firstElectionAt);
+        into.lastOkAt = Math.max(into.lastOkAt, merged.lastOkAt);
+        into.lastCoordinatorAt = Math.max(into.lastCoordinatorAt, merged.lastCoordinatorAt);
+        into.electionMessages += merged.electionMessages;
+        into.okMessages += merged.okMessages;
+        into.coordinatorMessages += merged.coordinatorMessages;
+        into.declarations += merged.declarations;
+        if (merged.declaredAt > into.declaredAt) {
+            into.declaredAt = merged.declaredAt;
+            into.winnerId = merged.winnerId;
+        }
+        into.lastEventAt = Math.max(into.lastEventAt, time);
+    }
+
+    public synchronized void expire(long time) {
+        Iterator<Election> iterator = elections.values().iterator();
+        while (iterator.hasNext()) {
+            Election election = iterator.next();
+            boolean quiet = election.declaredAt != -1 && time - election.lastEventAt > QUIET_PERIOD_IN_MS;
+            boolean abandoned = time - election.lastEventAt > ABANDON_AFTER_IN_MS;
+            if (quiet || abandoned) {
+                iterator.remove();
+                finish(election);
+            }
+        }
+    }
+
+    private void finish(Election election) {
+        finishedTraces.add(election.traceId);
+        for (String alias : election.aliases) {
+            aliases.remove(alias);
+            finishedTraces.add(alias);
+        }
+
+        if (election.declaredAt != -1) {
+            long electionTime = election.getDuration();
+            completedElections++;
+            totalElectionTime += electionTime;
+            maxElectionTime = Math.max(maxElectionTime, electionTime);
+        }
+
+        String timeline = election.toTimeline();
+        recentTimelines.addLast(timeline);
+        if (recentTimelines.size() > MAX_RECENT_TIMELINES) {
+            recentTimelines.removeFirst();
+        }
+        listener.accept(timeline);
+    }
+
+    public synchronized String summary() {
+        StringBuilder summary = new StringBuilder("Election timelines: " + completedElections + " completed");
+        if (completedElections > 0) {
+            summary.append(", avg ").append(getAverageElectionTime()).append(" ms until every process had the coordinator");
+        }
+        summary.append(", ").append(elections.size()).append(" in progress");
+        for (String timeline : recentTimelines) {
+            summary.append("\n  ").append(timeline);
+        }
+        return summary.toString();
+    }
+
+    public synchronized long getCompletedElections() {
+        return completedElections;
+    }
+
+    // From the first detection until the last COORDINATOR message was received
+    public synchronized long getAverageElectionTime() {
+        return completedElections == 0 ? 0 : totalElectionTime / completedElections;
+    }
+
+    public synchronized long getMaxElectionTime() {
+        return maxElectionTime;
+    }
+
+    private static class Election {
+        private String traceId;
+        private Set<String> aliases = new LinkedHashSet<>();
+
+        private int detectorId = -1;
+        private long detectorAt;
+        private long detectorClock;
+        private String reason = "unknown";
+        private Set<Integer> concurrentDetectors = new LinkedHashSet<>();
+        private Set<Integer> participants = new LinkedHashSet<>();
+        private int winnerId = -1;
+
+        private long detectedAt;
+        private long firstElectionAt = -1;
+        private long lastOkAt = -1;
+        private long declaredAt = -1;
+        private long lastCoordinatorAt = -1;
+        private long lastEventAt;
+
+        private int electionMessages;
+        private int okMessages;
+        private int coordinatorMessages;
+        private int declarations;
+
+        private Election(String traceId, long time) {
+            this.traceId = traceId;
+            this.detectedAt = time;
+            this.lastEventAt = time;
+        }
+
+        private long getDuration() {
+            return Math.max(declaredAt, lastCoordinatorAt) - detectedAt;
+        }
+
+        private String toTimeline() {
+            StringBuilder timeline = new StringBuilder("Election " + traceId);
+            if (winnerId == -1) {
+                timeline.append(" abandoned");
+            } else {
+                timeline.append(" won by ").append(winnerId);
+            }
+            timeline.append(": detected by ").append(detectorId == -1 ? "?" : String.valueOf(detectorId))
+                    .append(" (").append(reason).append(")");
+            if (!concurrentDetectors.isEmpty()) {
+                timeline.append(", also by ").append(concurrentDetectors);
+            }
+            timeline.append(", ").append(electionMessages).append(" ELECTION / ")
+                    .append(okMessages).append(" OK / ")
+                    .append(coordinatorMessages).append(" COORDINATOR across ")
+                    .append(participants.size()).append(" processes");
+            if (declarations > 1) {
+                timeline.append(", ").append(declarations).append(" coordinator declarations");
+            }
+            if (declaredAt != -1) {
+                timeline.append("; ").append(declaredAt - detectedAt).append(" ms to coordinator = ")
+                        .append(criticalPath());
+            }
+            return timeline.toString();
+        }
+
+        // Splits the election into consecutive phases, each clipped to start where the previous ended
+        private String criticalPath() {
+            List<String> phases = new ArrayList<>();
+            long previous = detectedAt;
+            if (firstElectionAt != -1) {
+                phases.add("fan-out " + Math.max(0, firstElectionAt - previous));
+                previous = Math.max(previous, firstElectionAt);
+            }
+            if (lastOkAt != -1) {
+                long okEnd = Math.min(lastOkAt, declaredAt);
+                phases.add("responses " + Math.max(0, okEnd - previous));
+                previous = Math.max(previous, okEnd);
+            }
+            phases.add("timeout wait " + Math.max(0, declaredAt - previous));
+            String path = String.join(" + ", phases);
+            if (lastCoordinatorAt != -1) {
+                path += ", then dissemination " + Math.max(0, lastCoordinatorAt - declaredAt) + " ms";
+            }
+            return path;
+        }
+    }
+}
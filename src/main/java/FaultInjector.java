@@ -0,0 +1,299 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Sits between a process and the sockets it sends on, and injects per-link delay, jitter,
+ * drops, reordering and partitions according to a schedule script.
+ *
+ * Script format, one command per line, "#" starts a comment:
+ * <pre>
+ * # offsetMs  command
+ * 0      link * * delay=20 jitter=10
+ * 0      link 1 3 drop=0.3 reorder=0.1
+ * 5000   partition 1,2 3,4
+ * 15000  heal
+ * 20000  clear
+ * </pre>
+ * Offsets are relative to the schedule epoch shared by every process of a run, so all
+ * nodes switch conditions at the same moment.
+ */
+public class FaultInjector {
+    protected static final int REORDER_HOLD_IN_MS = 500;
+
+    private int ownerId;
+    private Consumer<String> logger;
+    private Random random;
+    private ScheduledExecutorService scheduler;
+    private List<ScheduledFuture<?>> scheduledCommands;
+    private AtomicLong lastDeliveryAt;
+
+    private List<LinkFault> linkFaults;
+    private List<Set<Integer>> partitions;
+
+    private AtomicLong sentCount;
+    private AtomicLong droppedCount;
+    private AtomicLong delayedCount;
+    private AtomicLong reorderedCount;
+
+    public FaultInjector(int ownerId, Consumer<String> logger) {
+        this.ownerId = ownerId;
+        this.logger = logger;
+        this.random = new Random();
+        this.linkFaults = new ArrayList<>();
+        this.partitions = new ArrayList<>();
+        this.scheduledCommands = new ArrayList<>();
+        this.lastDeliveryAt = new AtomicLong();
+        this.sentCount = new AtomicLong();
+        this.droppedCount = new AtomicLong();
+        this.delayedCount = new AtomicLong();
+        this.reorderedCount = new AtomicLong();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fault-injector-" + ownerId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Parses the whole script before arming anything, so a bad line never leaves half a schedule running
+    public void loadSchedule(String path, long epochMs) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        List<Runnable> commands = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                int commentStart = line.indexOf('#');
+                if (commentStart >= 0) {
+                    line = line.substring(0, commentStart);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+");
+                if (parts.length < 2) {
+                    throw new IOException(path + ":" + lineNumber + ": expected '<offsetMs> <command>'");
+                }
+                long offset;
+                try {
+                    offset = Long.parseLong(parts[0]);
+                } catch (NumberFormatException e) {
+                    throw new IOException(path + ":" + lineNumber + ": invalid offset '" + parts[0] + "'");
+                }
+                offsets.add(offset);
+                commands.add(parseCommand(parts, path + ":" + lineNumber));
+            }
+        }
+
+        for (int i = 0; i < commands.size(); i++) {
+            long delay = Math.max(0, epochMs + offsets.get(i) - System.currentTimeMillis());
+            scheduledCommands.add(scheduler.schedule(commands.get(i), delay, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private Runnable parseCommand(String[] parts, String location) throws IOException {
+        switch (parts[1]) {
+            case "link":
+                if (parts.length < 4) {
+                    throw new IOException(location + ": expected 'link <from|*> <to|*> [key=value...]'");
+                }
+                LinkFault linkFault = parseLinkFault(parts, location);
+                return () -> addLinkFault(linkFault);
+            case "partition":
+                List<Set<Integer>> groups = new ArrayList<>();
+                for (int i = 2; i < parts.length; i++) {
+                    Set<Integer> group = new HashSet<>();
+                    for (String processId : parts[i].split(",")) {
+                        group.add(parseInt(processId, location));
+                    }
+                    groups.add(group);
+                }
+                if (groups.size() < 2) {
+                    throw new IOException(location + ": a partition needs at least two groups");
+                }
+                return () -> setPartitions(groups);
+            case "heal":
+                return () -> setPartitions(new ArrayList<>());
+            case "clear":
+                return this::clearLinkFaults;
+            default:
+                throw new IOException(location + ": unknown command '" + parts[1] + "'");
+        }
+    }
+
+    private LinkFault parseLinkFault(String[] parts, String location) throws IOException {
+        int fromId = parts[2].equals("*") ? -1 : parseInt(parts[2], location);
+        int toId = parts[3].equals("*") ? -1 : parseInt(parts[3], location);
+        int delay = 0;
+        int jitter = 0;
+        double drop = 0;
+        double reorder = 0;
+
+        for (int i = 4; i < parts.length; i++) {
+            String[] option = parts[i].split("=");
+            if (option.length != 2) {
+                throw new IOException(location + ": expected key=value, got '" + parts[i] + "'");
+            }
+            try {
+                switch (option[0]) {
+                    case "delay":
+                        delay = Integer.parseInt(option[1]);
+                        break;
+                    case "jitter":
+                        jitter = Integer.parseInt(option[1]);
+                        break;
+                    case "drop":
+                        drop = Double.parseDouble(option[1]);
+                        break;
+                    case "reorder":
+                        reorder = Double.parseDouble(option[1]);
+                        break;
+                    default:
+                        throw new IOException(location + ": unknown link option '" + option[0] + "'");
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException(location + ": invalid value for '" + option[0] + "'");
+            }
+        }
+
+        return new LinkFault(fromId, toId, delay, jitter, drop, reorder);
+    }
+
+    private int parseInt(String value, String location) throws IOException {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException(location + ": invalid process id '" + value + "'");
+        }
+    }
+
+    public synchronized void addLinkFault(LinkFault linkFault) {
+        linkFaults.add(linkFault);
+        logger.accept("Fault: process " + ownerId + " applied link " + linkFault);
+    }
+
+    public synchronized void clearLinkFaults() {
+        linkFaults.clear();
+        logger.accept("Fault: process " + ownerId + " cleared link faults");
+    }
+
+    public synchronized void setPartitions(List<Set<Integer>> groups) {
+        partitions = groups;
+        logger.accept("Fault: process " + ownerId + (groups.isEmpty() ? " healed partition" : " applied partition " + groups));
+    }
+
+    public void send(int senderId, int receiverId, Message message, Runnable delivery) {
+        sentCount.incrementAndGet();
+
+        LinkFault linkFault;
+        boolean partitioned;
+        synchronized (this) {
+            linkFault = findLinkFault(senderId, receiverId);
+            partitioned = isPartitioned(senderId, receiverId);
+        }
+
+        if (partitioned) {
+            droppedCount.incrementAndGet();
+            logger.accept("Fault: " + senderId + " -> " + receiverId + " " + message.getType() + " blocked by partition");
+            return;
+        }
+        if (linkFault == null) {
+            delivery.run();
+            return;
+        }
+        if (random.nextDouble() < linkFault.getDropRate()) {
+            droppedCount.incrementAndGet();
+            logger.accept("Fault: " + senderId + " -> " + receiverId + " " + message.getType() + " dropped");
+            return;
+        }
+
+        long delay = linkFault.getDelayInMs();
+        if (linkFault.getJitterInMs() > 0) {
+            delay += random.nextInt(linkFault.getJitterInMs() + 1);
+        }
+        if (random.nextDouble() < linkFault.getReorderRate()) {
+            // Hold the message past the jitter window so messages sent after it overtake it
+            delay += linkFault.getJitterInMs() + REORDER_HOLD_IN_MS;
+            reorderedCount.incrementAndGet();
+            logger.accept("Fault: " + senderId + " -> " + receiverId + " " + message.getType() + " reordered by " + delay + " ms");
+        } else if (delay > 0) {
+            delayedCount.incrementAndGet();
+        }
+
+        if (delay == 0) {
+            delivery.run();
+            return;
+        }
+        try {
+            lastDeliveryAt.accumulateAndGet(System.currentTimeMillis() + delay, Math::max);
+            scheduler.schedule(delivery, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Already shut down, so there is nobody left to hold the message back
+            delivery.run();
+        }
+    }
+
+    // The most recently added matching rule wins, so later schedule entries override earlier ones
+    private LinkFault findLinkFault(int senderId, int receiverId) {
+        for (int i = linkFaults.size() - 1; i >= 0; i--) {
+            if (linkFaults.get(i).matches(senderId, receiverId)) {
+                return linkFaults.get(i);
+            }
+        }
+        return null;
+    }
+
+    private boolean isPartitioned(int senderId, int receiverId) {
+        Set<Integer> senderGroup = null;
+        Set<Integer> receiverGroup = null;
+        for (Set<Integer> group : partitions) {
+            if (group.contains(senderId)) {
+                senderGroup = group;
+            }
+            if (group.contains(receiverId)) {
+                receiverGroup = group;
+            }
+        }
+        return senderGroup != null && receiverGroup != null && senderGroup != receiverGroup;
+    }
+
+    public String getStatistics() {
+        return "sent=" + sentCount.get() + " dropped=" + droppedCount.get()
+                + " delayed=" + delayedCount.get() + " reordered=" + reorderedCount.get();
+    }
+
+    /**
+     * Cancels the remaining schedule and waits for messages that are still held back, so
+     * notifications sent just before shutting down (such as STOP) still reach their peers.
+     */
+    public void shutdown() {
+        for (ScheduledFuture<?> command : scheduledCommands) {
+            command.cancel(false);
+        }
+        scheduler.shutdown();
+        try {
+            long remaining = lastDeliveryAt.get() - System.currentTimeMillis();
+            if (!scheduler.awaitTermination(Math.max(0, remaining) + 1000, TimeUnit.MILLISECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregates the central log stream into a summary of injected faults and their effect:
+ * election latency, time spent with more than one coordinator, and message volume.
+ */
+public class FaultReport {
+    private static final Pattern BECAME_COORDINATOR = Pattern.compile("^Process (\\d+) became coordinator after \\d+ ms( in election \\S+)?$");
+    private static final Pattern STEPPED_DOWN = Pattern.compile("^Process (\\d+) stepped down as coordinator$");
+    private static final Pattern RECEIVED = Pattern.compile("^Process \\d+ received: .*? \\| From: \\d+ \\| (\\w+)( \\| .*)?$");
+    private static final Pattern EXIT = Pattern.compile("^exit: ?(\\d+)$");
+
+    private ElectionTimelineAnalyzer timelineAnalyzer;
+
+    private Set<Integer> coordinators = new HashSet<>();
+    private Map<MessageType, Long> receivedByType = new EnumMap<>(MessageType.class);
+
+    private long faultEvents;
+    private long droppedMessages;
+    private long reorderedMessages;
+    private long scheduleErrors;
+
+    private long splitBrainStart = -1;
+    private long splitBrainTotal;
+    private long splitBrainEpisodes;
+
+    // Election latency comes from the analyzer, which follows each election from detection to dissemination
+    public FaultReport(ElectionTimelineAnalyzer timelineAnalyzer) {
+        this.timelineAnalyzer = timelineAnalyzer;
+    }
+
+    public synchronized void accept(String line) {
+        if (line == null) {
+            return;
+        }
+        line = line.trim();
+
+        if (line.startsWith("Fault: ")) {
+            if (line.endsWith(" dropped") || line.endsWith(" blocked by partition")) {
+                droppedMessages++;
+                faultEvents++;
+            } else if (line.contains(" reordered by ")) {
+                reorderedMessages++;
+                faultEvents++;
+            } else if (line.contains(" could not load schedule: ")) {
+                scheduleErrors++;
+            } else if (!line.contains(" statistics ") && !line.contains(" loaded schedule ")) {
+                faultEvents++;
+            }
+            return;
+        }
+
+        Matcher matcher = RECEIVED.matcher(line);
+        if (matcher.matches()) {
+            try {
+                receivedByType.merge(MessageType.valueOf(matcher.group(1)), 1L, Long::sum);
+            } catch (IllegalArgumentException e) {
+                // Not a message line after all
+            }
+            return;
+        }
+
+        matcher = BECAME_COORDINATOR.matcher(line);
+        if (matcher.matches()) {
+            coordinators.add(Integer.parseInt(matcher.group(1)));
+            updateSplitBrain();
+            return;
+        }
+
+        matcher = STEPPED_DOWN.matcher(line);
+        if (!matcher.matches()) {
+            matcher = EXIT.matcher(line);
+        }
+        if (matcher.matches()) {
+            coordinators.remove(Integer.parseInt(matcher.group(1)));
+            updateSplitBrain();
+        }
+    }
+
+    private void updateSplitBrain() {
+        long now = System.currentTimeMillis();
+        if (coordinators.size() > 1 && splitBrainStart == -1) {
+            splitBrainStart = now;
+            splitBrainEpisodes++;
+        } else if (coordinators.size() <= 1 && splitBrainStart != -1) {
+            splitBrainTotal += now - splitBrainStart;
+            splitBrainStart = -1;
+        }
+    }
+
+    public synchronized String summary() {
+        long splitBrain = splitBrainTotal;
+        if (splitBrainStart != -1) {
+            splitBrain += System.currentTimeMillis() - splitBrainStart;
+        }
+
+        long totalReceived = 0;
+        StringBuilder volume = new StringBuilder();
+        for (Map.Entry<MessageType, Long> entry : receivedByType.entrySet()) {
+            totalReceived += entry.getValue();
+            volume.append(" ").append(entry.getKey()).append("=").append(entry.getValue());
+        }
+
+        return "Fault report\n"
+                + "  Fault events: " + faultEvents + " (dropped " + droppedMessages + ", reordered " + reorderedMessages + ")\n"
+                + (scheduleErrors == 0 ? "" : "  Schedule errors: " + scheduleErrors + " (those processes run without faults)\n")
+                + "  Elections completed: " + timelineAnalyzer.getCompletedElections()
+                + " (detection to last COORDINATOR avg " + timelineAnalyzer.getAverageElectionTime()
+                + " ms, max " + timelineAnalyzer.getMaxElectionTime() + " ms)\n"
+                + "  Split brain: " + splitBrainEpisodes + " episodes, " + splitBrain + " ms total"
+                + ", current coordinators " + coordinators + "\n"
+                + "  Messages received: " + totalReceived + volume;
+    }
+}
@@ -22,8 +22,11 @@ public class GUI {
     private JFrame frame;
     private JTextArea logArea;
     private JTextField batchField;
+    private JTextField faultScriptField;
     private JButton startBatchButton;
     private JButton addProcessButton;
+    private JButton faultReportButton;
+    private JButton timelineButton;
     private JPanel processPanel;
     private JScrollPane scrollPane;
     private List<JButton> stopButtons = new ArrayList<>();
@@ -37,6 +40,10 @@ public class GUI {
 
     private AtomicInteger processesIdentifier = new AtomicInteger(0);
 
+    private ElectionTimelineAnalyzer timelineAnalyzer = new ElectionTimelineAnalyzer(timeline -> logArea.append("Server: " + timeline + "\n"));
+    private FaultReport faultReport = new FaultReport(timelineAnalyzer);
+    private long faultScheduleEpoch;
+
     public GUI() {
         frame = new JFrame("Bully Algorithm Simulation");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -51,6 +58,9 @@ public class GUI {
         topPanel.add(batchField);
         startBatchButton = new JButton("Start Batch");
         topPanel.add(startBatchButton);
+        topPanel.add(new JLabel("Fault Script:"));
+        faultScriptField = new JTextField(15);
+        topPanel.add(faultScriptField);
         frame.add(topPanel, BorderLayout.NORTH);
 
         // Process Panel
@@ -74,6 +84,10 @@ public class GUI {
         JPanel bottomPanel = new JPanel();
         addProcessButton = new JButton("Add New Process");
         bottomPanel.add(addProcessButton);
+        faultReportButton = new JButton("Fault Report");
+        bottomPanel.add(faultReportButton);
+        timelineButton = new JButton("Election Timelines");
+        bottomPanel.add(timelineButton);
         frame.add(bottomPanel, BorderLayout.SOUTH);
 
         // Button Actions
@@ -97,7 +111,7 @@ public class GUI {
                     otherProcessesArg.append(processApps.get(i).id).append(":").append(processApps.get(i).port).append(",");
                 }
 
-                ProcessBuilder processBuilder = new ProcessBuilder("javaw", "-cp", "target/classes", "Main", String.valueOf(id), String.valueOf(port), otherProcessesArg.toString());
+                ProcessBuilder processBuilder = createProcessBuilder(id, otherProcessesArg.toString());
                 ProcessApp addedProcess = new ProcessApp(id, ProcessApp.PORT_BASE + id);
 
                 // 2. Start the new process
@@ -115,9 +129,40 @@ public class GUI {
             }
         });
 
+        faultReportButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                timelineAnalyzer.expire(System.currentTimeMillis());
+                logArea.append(faultReport.summary() + "\n");
+            }
+        });
+
+        timelineButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                timelineAnalyzer.expire(System.currentTimeMillis());
+                logArea.append(timelineAnalyzer.summary() + "\n");
+            }
+        });
+
         frame.setVisible(true);
     }
 
+    private ProcessBuilder createProcessBuilder(int id, String otherProcessesArg) {
+        String faultScript = faultScriptField.getText().trim();
+        if (faultScript.isEmpty()) {
+            return new ProcessBuilder("javaw", "-cp", "target/classes", "Main", String.valueOf(id), String.valueOf(port), otherProcessesArg);
+        }
+
+        // Every process of a run, including ones added later, shares one epoch so scheduled faults
+        // hit all nodes at the same time
+        if (faultScheduleEpoch == 0) {
+            faultScheduleEpoch = System.currentTimeMillis();
+        }
+        return new ProcessBuilder("javaw", "-cp", "target/classes", "Main", String.valueOf(id), String.valueOf(port), otherProcessesArg,
+                faultScript, String.valueOf(faultScheduleEpoch));
+    }
+
     private void startBatchProcesses() {
         int batchSize;
 
@@ -133,6 +178,8 @@ public class GUI {
         }
 
         startBatchButton.setEnabled(false);
+        // Each batch is a new run, so its fault schedule starts from now
+        faultScheduleEpoch = 0;
 
         List<ProcessApp> currentBatchProcesses = new ArrayList<>();
 
@@ -152,7 +199,7 @@ public class GUI {
                 otherProcessesArg.append(processApps.get(j).id).append(":").append(processApps.get(j).port).append(",");
             }
 
-            ProcessBuilder processBuilder = new ProcessBuilder("javaw", "-cp", "target/classes", "Main", String.valueOf(currentBatchProcesses.get(i).id), String.valueOf(port), otherProcessesArg.toString());
+            ProcessBuilder processBuilder = createProcessBuilder(currentBatchProcesses.get(i).id, otherProcessesArg.toString());
 
             try {
                 processBuilder.inheritIO();
@@ -215,6 +262,8 @@ public class GUI {
                          BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
 
                         String messageString = in.readLine();
+                        faultReport.accept(messageString);
+                        timelineAnalyzer.accept(messageString, System.currentTimeMillis());
                         if (messageString.startsWith("exit:")) {
                             int id = Integer.parseInt(messageString.split(":")[1].trim());
                             for (int i = 0; i < processApps.size(); i++) {
@@ -0,0 +1,51 @@
+public class LinkFault {
+    private int fromId;
+    private int toId;
+    private int delayInMs;
+    private int jitterInMs;
+    private double dropRate;
+    private double reorderRate;
+
+    public LinkFault(int fromId, int toId, int delayInMs, int jitterInMs, double dropRate, double reorderRate) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.delayInMs = delayInMs;
+        this.jitterInMs = jitterInMs;
+        this.dropRate = dropRate;
+        this.reorderRate = reorderRate;
+    }
+
+    // -1 acts as a wildcard for either end of the link
+    public boolean matches(int senderId, int receiverId) {
+        return (fromId == -1 || fromId == senderId) && (toId == -1 || toId == receiverId);
+    }
+
+    public int getFromId() {
+        return fromId;
+    }
+
+    public int getToId() {
+        return toId;
+    }
+
+    public int getDelayInMs() {
+        return delayInMs;
+    }
+
+    public int getJitterInMs() {
+        return jitterInMs;
+    }
+
+    public double getDropRate() {
+        return dropRate;
+    }
+
+    public double getReorderRate() {
+        return reorderRate;
+    }
+
+    public String toString() {
+        return (fromId == -1 ? "*" : String.valueOf(fromId)) + " -> " + (toId == -1 ? "*" : String.valueOf(toId))
+                + " delay=" + delayInMs + " jitter=" + jitterInMs + " drop=" + dropRate + " reorder=" + reorderRate;
+    }
+}
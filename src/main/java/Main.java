@@ -36,6 +36,11 @@ public class Main {
             process.otherProcesses.add(new ProcessInfo(Integer.parseInt(processInfo[0]), Integer.parseInt(processInfo[1])));
         }
 
+        if (args.length > 3 && !args[3].isEmpty()) {
+            long scheduleEpoch = args.length > 4 ? Long.parseLong(args[4]) : System.currentTimeMillis();
+            process.loadFaultSchedule(args[3], scheduleEpoch);
+        }
+
         new Thread(process::start).start();
     }
 }
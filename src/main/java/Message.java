@@ -7,19 +7,33 @@ public class Message {
     private int receiverId;
     private int senderId;
     private long timestamp;
+    // COORDINATOR_ALIVE: remaining lease of the coordinator in ms, as of timestamp
+    private long lease;
+    // LEASE_ACK: timestamp of the COORDINATOR_ALIVE being acknowledged
+    private long ackedTimestamp;
+    // Lamport clock of the sender when the message was sent
+    private long clock;
+    // Election the message belongs to, empty when it is not part of one
+    private String traceId = "";
 
     public Message(int senderId, MessageType type, int receiverId) {
+        this(senderId, type, receiverId, 0);
+    }
+
+    public Message(int senderId, MessageType type, int receiverId, long lease) {
         this.senderId = senderId;
         this.type = type;
         this.receiverId = receiverId;
         this.timestamp = System.currentTimeMillis();
+        this.lease = lease;
     }
 
-    private Message(int senderId, MessageType type, int receiverId, long timestamp) {
+    private Message(int senderId, MessageType type, int receiverId, long timestamp, long lease) {
         this.senderId = senderId;
         this.type = type;
         this.receiverId = receiverId;
         this.timestamp = timestamp;
+        this.lease = lease;
     }
 
     public int getSenderId() {
@@ -38,12 +52,48 @@ public class Message {
         return timestamp;
     }
 
+    public long getLease() {
+        return lease;
+    }
+
+    public long getAckedTimestamp() {
+        return ackedTimestamp;
+    }
+
+    public void setAckedTimestamp(long ackedTimestamp) {
+        this.ackedTimestamp = ackedTimestamp;
+    }
+
+    public long getClock() {
+        return clock;
+    }
+
+    public void setClock(long clock) {
+        this.clock = clock;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public void setTraceId(String traceId) {
+        this.traceId = traceId == null ? "" : traceId;
+    }
+
     public String toString() {
-        return timestamp + " | From: " + senderId + " | " + type ;
+        return timestamp + " | From: " + senderId + " | " + type + optionalFields();
     }
 
     public String toLogString() {
-        return LocalDateTime.ofEpochSecond(timestamp / 1000, 0, ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("HH:mm:ss.SSS")) + " | From: " + senderId + " | " + type;
+        return LocalDateTime.ofEpochSecond(timestamp / 1000, (int) (timestamp % 1000) * 1_000_000, ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("HH:mm:ss.SSS"))
+                + " | From: " + senderId + " | " + type + optionalFields();
+    }
+
+    private String optionalFields() {
+        return (lease == 0 ? "" : " | Lease: " + lease)
+                + (ackedTimestamp == 0 ? "" : " | Ack: " + ackedTimestamp)
+                + (clock == 0 ? "" : " | Clock: " + clock)
+                + (traceId.isEmpty() ? "" : " | Trace: " + traceId);
     }
 
     public static Message fromString(String message) {
@@ -51,12 +101,35 @@ public class Message {
             return null;
         }
         String[] parts = message.split(" \\| ");
-        if (parts.length != 3) {
+        if (parts.length < 3) {
             return null;
         }
         long timestamp = Long.parseLong(parts[0].trim());
         int senderId = Integer.parseInt(parts[1].split(": ")[1].trim());
         MessageType type = MessageType.valueOf(parts[2].trim());
-        return new Message(senderId, type, -1, timestamp);
+        Message result = new Message(senderId, type, -1, timestamp, 0);
+        for (int i = 3; i < parts.length; i++) {
+            String[] field = parts[i].split(": ");
+            if (field.length != 2) {
+                return null;
+            }
+            switch (field[0].trim()) {
+                case "Lease":
+                    result.lease = Long.parseLong(field[1].trim());
+                    break;
+                case "Ack":
+                    result.ackedTimestamp = Long.parseLong(field[1].trim());
+                    break;
+                case "Clock":
+                    result.clock = Long.parseLong(field[1].trim());
+                    break;
+                case "Trace":
+                    result.traceId = field[1].trim();
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return result;
     }
 }
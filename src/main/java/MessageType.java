@@ -3,6 +3,7 @@ public enum MessageType {
     COORDINATOR,
     OK,
     COORDINATOR_ALIVE,
+    LEASE_ACK,
     STOP,
     COORDINATOR_STOP,
     NEW_PROCESS,
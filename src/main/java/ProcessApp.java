@@ -7,20 +7,31 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ProcessApp {
     protected static final int PORT_BASE = 7000;
     protected static final int COORDINATOR_TIMEOUT_IN_MS = 3000;
-    protected static final int ALIVE_MESSAGE_INTERVAL_IN_MS = COORDINATOR_TIMEOUT_IN_MS / 2;
     protected static final int ELECTION_TIMEOUT_IN_MS = 2000;
+    // Followers only start an election COORDINATOR_TIMEOUT_IN_MS after the last alive message,
+    // so a lease counted from that message's send time can never outlive their promise.
+    protected static final int LEASE_DURATION_IN_MS = COORDINATOR_TIMEOUT_IN_MS;
+    // Each alive carries the lease renewed by the previous round, about LEASE - INTERVAL of it.
+    // With three rounds per lease a follower's view only lapses if an alive takes longer than
+    // LEASE - 2 * INTERVAL (1000 ms) to arrive, or a whole round is lost.
+    protected static final int ALIVE_MESSAGE_INTERVAL_IN_MS = LEASE_DURATION_IN_MS / 3;
 
     protected int id;
     protected int port;
-    protected boolean isCoordinator;
+    // Written under the instance lock together with the lease, read without it by other threads
+    protected volatile boolean isCoordinator;
     protected int coordinatorId;
     protected AtomicBoolean isElectionInProgress;
     protected long electionStartTime;
@@ -28,12 +39,24 @@ public class ProcessApp {
     protected long latestCoordinatorTimestamp;
     protected int centralLoggerPort;
 
+    protected AtomicLong logicalClock;
+    protected volatile String traceId;
+
+    protected volatile CoordinatorLease coordinatorLease;
+    protected Map<Integer, Long> leaseAcks;
+    protected long coordinatorSince;
+    // Until this time the process has promised the holder not to acknowledge any other coordinator
+    protected int leasePromiseHolderId;
+    protected long leasePromiseExpiresAt;
+
     protected List<ProcessInfo> otherProcesses;
     protected ServerSocket serverSocket;
 
     protected Thread coordinatorHeartbeatThread;
     protected Thread electionTimeoutThread;
 
+    protected FaultInjector faultInjector;
+
     public ProcessApp(int id, int centralLoggerPort) {
         this.id = id;
         this.port = PORT_BASE + id;
@@ -42,6 +65,12 @@ public class ProcessApp {
         this.otherProcesses = new ArrayList<>();
         this.centralLoggerPort = centralLoggerPort;
         this.isElectionInProgress = new AtomicBoolean(false);
+        this.coordinatorLease = CoordinatorLease.NONE;
+        this.logicalClock = new AtomicLong(0);
+        this.traceId = "";
+        this.leaseAcks = new ConcurrentHashMap<>();
+        this.leasePromiseHolderId = -1;
+        this.faultInjector = new FaultInjector(id, this::log);
     }
 
     public void start() {
@@ -71,6 +100,15 @@ public class ProcessApp {
         }
     }
 
+    public void loadFaultSchedule(String path, long epochMs) {
+        try {
+            faultInjector.loadSchedule(path, epochMs);
+            log("Fault: process " + id + " loaded schedule " + path);
+        } catch (IOException e) {
+            log("Fault: process " + id + " could not load schedule: " + e.getMessage());
+        }
+    }
+
     public void stop() {
         try {
             for (ProcessInfo processInfo : otherProcesses) {
@@ -81,8 +119,9 @@ public class ProcessApp {
                 }
             }
 
-            isCoordinator = false;
+            stepDownAsCoordinator();
             coordinatorId = -1;
+            coordinatorLease = CoordinatorLease.NONE;
 
             serverSocket.close();
             terminateHeartbeatThread();
@@ -90,6 +129,8 @@ public class ProcessApp {
             if (electionTimeoutThread != null) {
                 electionTimeoutThread.interrupt();
             }
+            faultInjector.shutdown();
+            log("Fault: process " + id + " statistics " + faultInjector.getStatistics());
             log("exit: " + id);
         } catch (IOException e) {
             e.printStackTrace();
@@ -103,10 +144,17 @@ public class ProcessApp {
     }
 
     private void requestCoordinatorElection() {
-        startElectionProcess();
+        startElectionProcess("startup");
+    }
+
+    private void startElectionProcess(String reason) {
+        // Trace ids are "<lamport clock>.<process id>" of the detecting process, unique across the cluster
+        startElectionProcess(logicalClock.incrementAndGet() + "." + id, reason);
     }
 
-    private void startElectionProcess() {
+    private void startElectionProcess(String electionTraceId, String reason) {
+        traceId = electionTraceId;
+        log("Process " + id + " started election " + traceId + " at clock " + logicalClock.get() + " (" + reason + ")");
         isElectionInProgress.set(true);
         electionStartTime = System.currentTimeMillis();
 
@@ -125,6 +173,7 @@ public class ProcessApp {
             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
             String messageString = in.readLine();
             Message message = Message.fromString(messageString);
+            logicalClock.accumulateAndGet(message.getClock(), (local, received) -> Math.max(local, received) + 1);
 
             log("Process " + id + " received: " + message.toLogString());
             switch (message.getType()) {
@@ -143,6 +192,9 @@ public class ProcessApp {
                 case COORDINATOR_ALIVE:
                     processCoordinatorAliveMessage(message);
                     break;
+                case LEASE_ACK:
+                    processLeaseAckMessage(message);
+                    break;
                 case STOP:
                     processStopMessage(message);
                     break;
@@ -172,11 +224,37 @@ public class ProcessApp {
 
     private void processElectionMessage(Message message) {
         if (!isElectionInProgress.get()) {
-            startElectionProcess();
+            if (message.getTraceId().isEmpty()) {
+                startElectionProcess("election from " + message.getSenderId());
+            } else {
+                startElectionProcess(message.getTraceId(), "election from " + message.getSenderId());
+            }
+        } else if (isEarlierTrace(message.getTraceId(), traceId)) {
+            // Concurrent detections of the same failure converge on the earliest election
+            log("Process " + id + " joined election " + message.getTraceId() + " (was " + traceId + ")");
+            traceId = message.getTraceId();
         }
 
-        sendMessageToProcess(new ProcessInfo(message.getSenderId(), PORT_BASE + message.getSenderId()),
-                new Message(id, MessageType.OK, message.getSenderId()));
+        Message ok = new Message(id, MessageType.OK, message.getSenderId());
+        ok.setTraceId(message.getTraceId());
+        sendMessageToProcess(new ProcessInfo(message.getSenderId(), PORT_BASE + message.getSenderId()), ok);
+    }
+
+    private static boolean isEarlierTrace(String candidate, String current) {
+        if (candidate.isEmpty() || candidate.equals(current)) {
+            return false;
+        }
+        if (current.isEmpty()) {
+            return true;
+        }
+        String[] candidateParts = candidate.split("\\.");
+        String[] currentParts = current.split("\\.");
+        long candidateClock = Long.parseLong(candidateParts[0]);
+        long currentClock = Long.parseLong(currentParts[0]);
+        if (candidateClock != currentClock) {
+            return candidateClock < currentClock;
+        }
+        return Integer.parseInt(candidateParts[1]) < Integer.parseInt(currentParts[1]);
     }
 
     private void processCoordinatorMessage(Message message) {
@@ -187,9 +265,17 @@ public class ProcessApp {
         if (message.getTimestamp() >= latestCoordinatorTimestamp  && message.getSenderId() > id) {
             latestCoordinatorTimestamp = message.getTimestamp();
             coordinatorId = message.getSenderId();
+            if (!message.getTraceId().isEmpty() && !message.getTraceId().equals(traceId)) {
+                // Detectors below the winner never see its ELECTION, so this is where their trace merges
+                if (!traceId.isEmpty()) {
+                    log("Process " + id + " joined election " + message.getTraceId() + " (was " + traceId + ")");
+                }
+                traceId = message.getTraceId();
+            }
+            log("Process " + id + " accepted coordinator " + coordinatorId);
         }
         terminateHeartbeatThread();
-        isCoordinator = false;
+        stepDownAsCoordinator();
     }
 
     private void processOkMessage(Message message) {
@@ -197,29 +283,79 @@ public class ProcessApp {
     }
 
     private void processCoordinatorAliveMessage(Message message) {
-        lastAliveMessageTime = System.currentTimeMillis();
         if (message.getSenderId() > id) {
             terminateHeartbeatThread();
-            isCoordinator = false;
+            stepDownAsCoordinator();
+        }
+
+        if (!isCoordinator && acceptsAliveFrom(message.getSenderId())) {
+            lastAliveMessageTime = System.currentTimeMillis();
+            coordinatorId = message.getSenderId();
+            if (message.getLease() > 0) {
+                // Processes share the host clock, so this expires exactly when the coordinator's own lease does
+                coordinatorLease = new CoordinatorLease(message.getSenderId(), message.getTimestamp() + message.getLease());
+            }
+            leasePromiseHolderId = message.getSenderId();
+            leasePromiseExpiresAt = message.getTimestamp() + LEASE_DURATION_IN_MS;
+            Message ack = new Message(id, MessageType.LEASE_ACK, message.getSenderId());
+            ack.setAckedTimestamp(message.getTimestamp());
+            sendMessageToProcess(new ProcessInfo(message.getSenderId(), PORT_BASE + message.getSenderId()), ack);
+        }
+    }
+
+    /**
+     * While a lease promise is running only its holder is acknowledged, so two processes that
+     * both believe they are coordinator can never both collect a majority. Once it lapses a
+     * higher process may take over, and a lower one only after the current coordinator has
+     * gone silent.
+     */
+    private boolean acceptsAliveFrom(int senderId) {
+        if (senderId < id) {
+            return false;
+        }
+        if (System.currentTimeMillis() < leasePromiseExpiresAt) {
+            return senderId == leasePromiseHolderId;
+        }
+        return senderId == coordinatorId || senderId > coordinatorId || System.currentTimeMillis() - lastAliveMessageTime > COORDINATOR_TIMEOUT_IN_MS;
+    }
+
+    private void processLeaseAckMessage(Message message) {
+        leaseAcks.merge(message.getSenderId(), message.getAckedTimestamp(), Math::max);
+        if (isCoordinator) {
+            renewCoordinatorLease();
         }
     }
 
     private void processStopMessage(Message message) {
         removeProcessFromList(message.getSenderId());
+        leaseAcks.remove(message.getSenderId());
+        releaseLeaseOf(message.getSenderId());
 
         if (isElectionInProgress.get() && message.getSenderId() > id) {
-            startElectionProcess();
+            startElectionProcess("process " + message.getSenderId() + " stopped");
         }
     }
 
     private void processCoordinatorStopMessage(Message message) {
-        isCoordinator = false;
+        stepDownAsCoordinator();
         coordinatorId = -1;
+        releaseLeaseOf(message.getSenderId());
 
         removeProcessFromList(message.getSenderId());
 
         if (isElectionInProgress.get()) {
-            startElectionProcess();
+            startElectionProcess("coordinator " + message.getSenderId() + " stopped");
+        }
+    }
+
+    // A process that leaves voluntarily gives up its lease and frees us from our promise to it
+    private void releaseLeaseOf(int processId) {
+        if (coordinatorLease.getCoordinatorId() == processId) {
+            coordinatorLease = CoordinatorLease.NONE;
+        }
+        if (leasePromiseHolderId == processId) {
+            leasePromiseHolderId = -1;
+            leasePromiseExpiresAt = 0;
         }
     }
 
@@ -234,7 +370,7 @@ public class ProcessApp {
 
     private void verifyCoordinatorLiveness() {
         if (System.currentTimeMillis() - lastAliveMessageTime > COORDINATOR_TIMEOUT_IN_MS) {
-            startElectionProcess();
+            startElectionProcess("coordinator timeout");
         }
     }
 
@@ -261,21 +397,95 @@ public class ProcessApp {
     }
 
     private void declareSelfAsCoordinator() {
+        // Logged before the fan-out so the log shows the declaration ahead of its COORDINATOR receipts
+        log("Process " + id + " became coordinator after " + (System.currentTimeMillis() - electionStartTime) + " ms in election " + traceId);
         for (ProcessInfo processInfo : otherProcesses) {
             sendMessageToProcess (processInfo, new Message(id, MessageType.COORDINATOR, processInfo.getId()));
         }
 
-        isCoordinator = true;
+        synchronized (this) {
+            leaseAcks.clear();
+            coordinatorLease = CoordinatorLease.NONE;
+            coordinatorSince = System.currentTimeMillis();
+            isCoordinator = true;
+        }
         coordinatorId = id;
         isElectionInProgress.set(false);
+        renewCoordinatorLease();
         startCoordinatorHeartbeatThread();
     }
 
+    // Shares the lock with renewCoordinatorLease so a late acknowledgement cannot revive the lease
+    private void stepDownAsCoordinator() {
+        boolean wasCoordinator;
+        synchronized (this) {
+            wasCoordinator = isCoordinator;
+            isCoordinator = false;
+            if (coordinatorLease.getCoordinatorId() == id) {
+                coordinatorLease = CoordinatorLease.NONE;
+            }
+        }
+        if (wasCoordinator) {
+            log("Process " + id + " stepped down as coordinator");
+        }
+    }
+
+    /**
+     * Extends the lease to the send time of the newest alive message acknowledged by a majority
+     * of the cluster (this process included) plus the lease duration.
+     */
+    private synchronized void renewCoordinatorLease() {
+        int requiredAcks = (otherProcesses.size() + 1) / 2;
+        long expiresAt;
+        if (requiredAcks == 0) {
+            expiresAt = System.currentTimeMillis() + LEASE_DURATION_IN_MS;
+        } else {
+            List<Long> acks = new ArrayList<>();
+            for (ProcessInfo processInfo : otherProcesses) {
+                Long ack = leaseAcks.get(processInfo.getId());
+                if (ack != null) {
+                    acks.add(ack);
+                }
+            }
+            if (acks.size() < requiredAcks) {
+                return;
+            }
+            acks.sort(Collections.reverseOrder());
+            expiresAt = acks.get(requiredAcks - 1) + LEASE_DURATION_IN_MS;
+        }
+
+        if (isCoordinator && expiresAt > coordinatorLease.getExpiresAt()) {
+            coordinatorLease = new CoordinatorLease(id, expiresAt);
+        }
+    }
+
+    /**
+     * A fresh coordinator is not failed until its grace period is over. Followers may still be
+     * promised to the previous coordinator for up to a lease after this one took over. The
+     * first alive after that promise can go out up to an interval later, and its
+     * acknowledgements take another interval to be counted.
+     */
+    private boolean holdsCoordinatorLease() {
+        return coordinatorLease.isValid()
+                || System.currentTimeMillis() - coordinatorSince < LEASE_DURATION_IN_MS + 2 * ALIVE_MESSAGE_INTERVAL_IN_MS;
+    }
+
+    public CoordinatorLease getCoordinatorLease() {
+        return coordinatorLease;
+    }
+
     private void startCoordinatorHeartbeatThread() {
         coordinatorHeartbeatThread = new Thread(() -> {
             while (!coordinatorHeartbeatThread.isInterrupted() && isCoordinator) {
                 try {
                     Thread.sleep(ALIVE_MESSAGE_INTERVAL_IN_MS);
+                    renewCoordinatorLease();
+                    if (!holdsCoordinatorLease()) {
+                        log("Process " + id + " could not renew its coordinator lease.");
+                        stepDownAsCoordinator();
+                        coordinatorId = -1;
+                        break;
+                    }
                     log("Process " + id + " sending alive message to other processes.");
                     broadcastCoordinatorAliveSignal();
                 } catch (InterruptedException e) {
@@ -289,12 +499,20 @@ public class ProcessApp {
 
     private void broadcastCoordinatorAliveSignal() throws InterruptedException {
         for (ProcessInfo processInfo : otherProcesses) {
-            sendMessageToProcess (processInfo, new Message(id, MessageType.COORDINATOR_ALIVE, processInfo.getId()));
+            sendMessageToProcess (processInfo, new Message(id, MessageType.COORDINATOR_ALIVE, processInfo.getId(), coordinatorLease.getRemainingInMs()));
         }
 
     }
 
     private void sendMessageToProcess(ProcessInfo receiver, Message message) {
+        message.setClock(logicalClock.incrementAndGet());
+        if (message.getTraceId().isEmpty()) {
+            message.setTraceId(traceId);
+        }
+        faultInjector.send(id, receiver.getId(), message, () -> deliverMessage(receiver, message));
+    }
+
+    private void deliverMessage(ProcessInfo receiver, Message message) {
         try (Socket socket = new Socket("localhost", receiver.getPort());
              PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
             out.println(message.toString());